@@ -0,0 +1,27 @@
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The audio format every part of the chat agrees on: Client captures/plays it,
+ * the server's mix clock runs at its frame rate and MixerList probes devices with it.
+ */
+public class AudioFormats {
+
+    public static final float SAMPLE_RATE = 44100.0f;
+    public static final int SAMPLE_SIZE_IN_BITS = 16;
+    public static final int CHANNELS = 1;
+    public static final boolean SIGNED = true;
+    public static final boolean BIG_ENDIAN = false;
+
+    // Bytes of PCM per captured/sent frame
+    public static final int FRAME_BYTES = 1024;
+
+    public static AudioFormat voice() {
+        return new AudioFormat(SAMPLE_RATE, SAMPLE_SIZE_IN_BITS, CHANNELS, SIGNED, BIG_ENDIAN);
+    }
+
+    // Duration of one FRAME_BYTES frame in microseconds
+    public static long frameMicros() {
+        int bytesPerSample = SAMPLE_SIZE_IN_BITS / 8 * CHANNELS;
+        return (long) (FRAME_BYTES / bytesPerSample * 1_000_000L / SAMPLE_RATE);
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * PCM mixing helpers for the server's mixing (MCU) mode.
+ *
+ * Samples are 16-bit signed little-endian mono, the same format Client captures.
+ * Frames of different lengths are mixed as if the shorter ones were padded with silence.
+ *
+ * Headroom: a mix of n voices is scaled by 1/sqrt(n) (uncorrelated voices add up in power,
+ * not amplitude), so loudness stays roughly constant as the room grows; anything still
+ * out of range is clipped.
+ */
+public class AudioMixer {
+
+    // Sum every frame into a 32-bit accumulator (one int per sample)
+    public static int[] sum(byte[][] frames) {
+        int samples = 0;
+        for (byte[] f : frames) {
+            if (f != null) samples = Math.max(samples, f.length / 2);
+        }
+        int[] acc = new int[samples];
+        for (byte[] f : frames) {
+            if (f == null) continue;
+            int n = f.length / 2;
+            for (int i = 0; i < n; i++) {
+                acc[i] += sample(f, i);
+            }
+        }
+        return acc;
+    }
+
+    // Mix-minus: the room sum with the listener's own frame taken out, for `voices` other speakers
+    public static byte[] mixMinus(int[] sum, byte[] own, int voices) {
+        int ownSamples = own == null ? 0 : own.length / 2;
+        double gain = voices > 1 ? 1.0 / Math.sqrt(voices) : 1.0;
+        byte[] out = new byte[sum.length * 2];
+        for (int i = 0; i < sum.length; i++) {
+            int v = sum[i];
+            if (i < ownSamples) v -= sample(own, i);
+            v = (int) Math.round(v * gain);
+            if (v > Short.MAX_VALUE) v = Short.MAX_VALUE;
+            else if (v < Short.MIN_VALUE) v = Short.MIN_VALUE;
+            out[2 * i] = (byte) v;
+            out[2 * i + 1] = (byte) (v >> 8);
+        }
+        return out;
+    }
+
+    private static int sample(byte[] pcm, int i) {
+        return (short) ((pcm[2 * i] & 0xFF) | (pcm[2 * i + 1] << 8));
+    }
+}
@@ -10,21 +10,27 @@ public class Client {
     private final int port;
     private final char[] password;
     private final byte[] salt;
+    private final String inputDevice;    // null => system default
+    private final String outputDevice;   // null => system default
 
     private volatile boolean muted = false;   // <-- NEW
 
-    private static final float SAMPLE_RATE = 44100.0f;
-    private static final int SAMPLE_SIZE_IN_BITS = 16;
-    private static final int CHANNELS = 1;
-    private static final boolean SIGNED = true;
-    private static final boolean BIG_ENDIAN = false;
-    private static final int BUFFER_BYTES = 1024;
+    private static final int BUFFER_BYTES = AudioFormats.FRAME_BYTES;
+    // Smallest line buffer we ask for: two frames, one being filled/played while the other is handed over.
+    // Raised to the device's probed minimum when that is larger.
+    private static final int LINE_BUFFER_BYTES = BUFFER_BYTES * 2;
 
     public Client(String host, int port, char[] password, byte[] salt) {
+        this(host, port, password, salt, null, null);
+    }
+
+    public Client(String host, int port, char[] password, byte[] salt, String inputDevice, String outputDevice) {
         this.host = host;
         this.port = port;
         this.password = password;
         this.salt = salt;
+        this.inputDevice = inputDevice;
+        this.outputDevice = outputDevice;
     }
 
     // called from UI when mute button toggled
@@ -38,9 +44,16 @@ public class Client {
         SpeakerUI.initUI(this::setMuted);
 
         SecretKey aesKey = CryptoUtil.deriveKeyFromPassword(password, salt);
+
+        // Pick, probe and open both devices before connecting, so no audio piles up meanwhile
+        AudioFormat format = AudioFormats.voice();
+        TargetDataLine mic = (TargetDataLine) openDevice("Microphone", inputDevice, TargetDataLine.class, format);
+        SourceDataLine speakers = (SourceDataLine) openDevice("Speakers", outputDevice, SourceDataLine.class, format);
+
         System.out.println("Derived AES key. Connecting to server " + host + ":" + port);
 
         Socket audioSocket = new Socket(host, port);
+        audioSocket.setTcpNoDelay(true);   // frames go out as small writes; don't let Nagle batch them
         System.out.println("Connected audio socket to " + host + ":" + port);
 
         Socket controlSocket = new Socket(host, port + 1);
@@ -70,7 +83,7 @@ public class Client {
 
         Thread receiver = new Thread(() -> {
             try (InputStream in = audioSocket.getInputStream()) {
-                playLoop(in, aesKey);
+                playLoop(in, aesKey, speakers);
             } catch (Exception e) {
                 System.err.println("Receiver error: " + e.getMessage());
             }
@@ -79,7 +92,7 @@ public class Client {
 
         Thread sender = new Thread(() -> {
             try (OutputStream out = audioSocket.getOutputStream()) {
-                captureAndSend(out, aesKey);
+                captureAndSend(out, aesKey, mic);
             } catch (Exception e) {
                 System.err.println("Sender error: " + e.getMessage());
             } finally {
@@ -93,14 +106,7 @@ public class Client {
     }
 
     // --------- capture with VAD + mute ----------
-    private void captureAndSend(OutputStream out, SecretKey key) throws Exception {
-        AudioFormat format = new AudioFormat(SAMPLE_RATE, SAMPLE_SIZE_IN_BITS, CHANNELS, SIGNED, BIG_ENDIAN);
-        DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
-        if (!AudioSystem.isLineSupported(info)) {
-            throw new IllegalStateException("Microphone not supported.");
-        }
-        TargetDataLine line = (TargetDataLine) AudioSystem.getLine(info);
-        line.open(format);
+    private void captureAndSend(OutputStream out, SecretKey key, TargetDataLine line) throws Exception {
         line.start();
         System.out.println("Microphone opened with VAD + mute support.");
 
@@ -153,14 +159,7 @@ public class Client {
     }
 
     // --------- play audio ----------
-    private void playLoop(InputStream in, SecretKey key) throws Exception {
-        AudioFormat format = new AudioFormat(SAMPLE_RATE, SAMPLE_SIZE_IN_BITS, CHANNELS, SIGNED, BIG_ENDIAN);
-        DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
-        if (!AudioSystem.isLineSupported(info)) {
-            throw new IllegalStateException("Speaker output not supported.");
-        }
-        SourceDataLine speakers = (SourceDataLine) AudioSystem.getLine(info);
-        speakers.open(format);
+    private void playLoop(InputStream in, SecretKey key, SourceDataLine speakers) throws Exception {
         speakers.start();
         System.out.println("Speakers opened, ready to play incoming audio...");
 
@@ -185,26 +184,42 @@ public class Client {
         speakers.close();
     }
 
-    public static byte[] hexToBytes(String hex) {
-        hex = hex.replaceAll("[^0-9A-Fa-f]", "");
-        int len = hex.length();
-        byte[] out = new byte[len / 2];
-        for (int i = 0; i < out.length; i++) {
-            int idx = i * 2;
-            out[i] = (byte) Integer.parseInt(hex.substring(idx, idx + 2), 16);
+    // Pick the device, measure its minimum stable buffer, open with max(two frames, that minimum)
+    private static DataLine openDevice(String label, String name, Class<? extends DataLine> type, AudioFormat format) {
+        DataLine.Info info = new DataLine.Info(type, format);
+        Mixer.Info device = MixerList.findMixer(name, info);
+        if (device == null) {
+            throw new IllegalStateException(label + " not supported"
+                    + (name == null ? "." : ": no device matching \"" + name + "\"."));
+        }
+        DataLine line;
+        try {
+            line = (DataLine) AudioSystem.getMixer(device).getLine(info);
+            int minStable = MixerList.probeMinBufferBytes(line, format, BUFFER_BYTES);
+            if (minStable < 0) {
+                System.out.println("Could not probe " + device.getName() + "; using a " + LINE_BUFFER_BYTES + " byte buffer.");
+            }
+            MixerList.open(line, format, Math.max(LINE_BUFFER_BYTES, minStable));
+        } catch (LineUnavailableException e) {
+            throw new IllegalStateException(label + " not supported: " + e.getMessage());
         }
-        return out;
+        System.out.printf("%s: %s (buffer %d bytes, %.1f ms latency)%n",
+                label, device.getName(), line.getBufferSize(), MixerList.latencyMillis(line));
+        return line;
     }
 
     public static void main(String[] args) throws Exception {
         if (args.length < 4) {
-            System.out.println("Usage: java Client <host> <port> <password> <saltHex>");
+            System.out.println("Usage: java Client <host> <port> <password> <saltHex> [inputDevice] [outputDevice]");
+            System.out.println("Devices are matched by (part of) the mixer name; run java MixerList to see them.");
             return;
         }
         String host = args[0];
         int port = Integer.parseInt(args[1]);
         char[] password = args[2].toCharArray();
-        byte[] salt = hexToBytes(args[3]);
-        new Client(host, port, password, salt).start();
+        byte[] salt = CryptoUtil.hexToBytes(args[3]);
+        String inputDevice = args.length >= 5 ? args[4] : null;
+        String outputDevice = args.length >= 6 ? args[5] : null;
+        new Client(host, port, password, salt, inputDevice, outputDevice).start();
     }
 }
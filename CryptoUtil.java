@@ -44,4 +44,16 @@ public class CryptoUtil {
         cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
         return cipher.doFinal(ciphertext);
     }
+
+    // Parse a salt given as hex on the command line (non-hex characters are ignored)
+    public static byte[] hexToBytes(String hex) {
+        hex = hex.replaceAll("[^0-9A-Fa-f]", "");
+        int len = hex.length();
+        byte[] out = new byte[len / 2];
+        for (int i = 0; i < out.length; i++) {
+            int idx = i * 2;
+            out[i] = (byte) Integer.parseInt(hex.substring(idx, idx + 2), 16);
+        }
+        return out;
+    }
 }
@@ -1,7 +1,147 @@
 import javax.sound.sampled.*;
 
+/**
+ * Audio device probing.
+ *
+ * Run directly to list mixers together with the smallest stable line buffer each one
+ * accepts for the chat's audio format. Client uses findMixer/probeMinBufferBytes to pick a
+ * device by name and open it with the smallest buffer that device handles reliably.
+ */
 public class MixerList {
+
+    private static final int MAX_PROBE_BYTES = 64 * 1024;
+    private static final long PROBE_MS = 250;
+    private static final long WARMUP_MS = 50;        // ignore start-up bursts
+    private static final double HEADROOM = 0.25;     // buffer share that must stay spare at worst
+
+    /**
+     * First mixer supporting the given line whose name contains the text (case-insensitive);
+     * the first supporting mixer (what the system default normally resolves to) when name is null.
+     * Returns null if none matches.
+     * Checking the line matters: "Microphone (USB Mic)", "Speakers (USB Mic)" and the
+     * "Port ..." entries all name the same hardware.
+     */
+    public static Mixer.Info findMixer(String name, Line.Info line) {
+        String wanted = name == null ? null : name.toLowerCase();
+        for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+            if (wanted != null && !info.getName().toLowerCase().contains(wanted)) continue;
+            try {
+                if (AudioSystem.getMixer(info).isLineSupported(line)) return info;
+            } catch (SecurityException | IllegalArgumentException ignored) {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Open the line asking for bufferBytes of line buffer. The driver may round the buffer up;
+     * use latencyMillis afterwards to see what was actually granted.
+     */
+    public static void open(DataLine line, AudioFormat format, int bufferBytes) throws LineUnavailableException {
+        if (line instanceof TargetDataLine t) {
+            t.open(format, bufferBytes);
+        } else if (line instanceof SourceDataLine s) {
+            s.open(format, bufferBytes);
+        } else {
+            line.open();
+        }
+    }
+
+    // Latency contributed by the line buffer, in milliseconds
+    public static double latencyMillis(DataLine line) {
+        return frameMillis(line.getFormat(), line.getBufferSize());
+    }
+
+    /**
+     * Smallest buffer (bytes) the line runs stably with, or -1 if it cannot be opened.
+     * Starts at one frame and doubles. Each size streams frames for PROBE_MS as fast as the
+     * device allows while tracking the worst buffer level the device itself causes: the
+     * largest backlog a capture line builds before we get to read it, and the deepest a
+     * playback line drains before we can refill it. A size is stable if that worst case
+     * still leaves HEADROOM of the buffer spare. The line is left closed.
+     */
+    public static int probeMinBufferBytes(DataLine line, AudioFormat format, int frameBytes) {
+        for (int size = frameBytes; size <= MAX_PROBE_BYTES; size *= 2) {
+            try {
+                open(line, format, size);
+                int worst;
+                if (line instanceof TargetDataLine t) {
+                    worst = worstCaptureFill(t, frameBytes);
+                } else if (line instanceof SourceDataLine s) {
+                    worst = worstPlaybackDrain(s, frameBytes);
+                } else {
+                    return -1;
+                }
+                if (worst <= line.getBufferSize() * (1 - HEADROOM)) return line.getBufferSize();
+            } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+                // try the next size up
+            } finally {
+                line.close();
+            }
+        }
+        return -1;
+    }
+
+    // Same for a line of the given type on a mixer (used by the device listing)
+    public static int probeMinBufferBytes(Mixer mixer, Class<? extends DataLine> type,
+                                          AudioFormat format, int frameBytes) {
+        DataLine.Info info = new DataLine.Info(type, format);
+        if (!mixer.isLineSupported(info)) return -1;
+        try {
+            return probeMinBufferBytes((DataLine) mixer.getLine(info), format, frameBytes);
+        } catch (LineUnavailableException | SecurityException e) {
+            return -1;
+        }
+    }
+
+    // Largest number of bytes waiting in the capture buffer right before a read
+    private static int worstCaptureFill(TargetDataLine line, int frameBytes) {
+        byte[] buf = new byte[Math.min(frameBytes, line.getBufferSize())];
+        int worst = 0;
+        line.start();
+        try {
+            long start = System.currentTimeMillis();
+            long now;
+            while ((now = System.currentTimeMillis()) - start < PROBE_MS) {
+                int fill = line.available();
+                if (now - start >= WARMUP_MS) worst = Math.max(worst, fill);
+                line.read(buf, 0, buf.length);
+            }
+            return worst;
+        } finally {
+            line.stop();
+            line.flush();
+        }
+    }
+
+    // Largest number of bytes the device consumed from the playback buffer before a refill
+    private static int worstPlaybackDrain(SourceDataLine line, int frameBytes) {
+        int bufferSize = line.getBufferSize();
+        byte[] silence = new byte[Math.min(frameBytes, bufferSize)];
+        int worst = 0;
+        line.write(new byte[bufferSize], 0, bufferSize);
+        line.start();
+        try {
+            long start = System.currentTimeMillis();
+            long now;
+            while ((now = System.currentTimeMillis()) - start < PROBE_MS) {
+                int drained = line.available();
+                if (now - start >= WARMUP_MS) worst = Math.max(worst, drained);
+                line.write(silence, 0, silence.length);
+            }
+            return worst;
+        } finally {
+            line.stop();
+            line.flush();
+        }
+    }
+
+    private static double frameMillis(AudioFormat f, int bytes) {
+        return bytes * 1000.0 / (f.getFrameSize() * f.getFrameRate());
+    }
+
     public static void main(String[] args) {
+        AudioFormat format = AudioFormats.voice();
         Mixer.Info[] mixers = AudioSystem.getMixerInfo();
         System.out.println("Available Mixers (" + mixers.length + "):");
         for (int i = 0; i < mixers.length; i++) {
@@ -10,12 +150,22 @@ public class MixerList {
             try {
                 Mixer m = AudioSystem.getMixer(info);
                 Line.Info[] lines = m.getTargetLineInfo();
-                if (lines.length > 0) System.out.println("   Has target (input) lines.");
+                if (lines.length > 0) {
+                    System.out.println("   Has target (input) lines." + probeReport(m, TargetDataLine.class, format));
+                }
                 Line.Info[] sourceLines = m.getSourceLineInfo();
-                if (sourceLines.length > 0) System.out.println("   Has source (output) lines.");
+                if (sourceLines.length > 0) {
+                    System.out.println("   Has source (output) lines." + probeReport(m, SourceDataLine.class, format));
+                }
             } catch (Exception e) {
                 System.out.println("   (could not query lines: " + e.getMessage() + ")");
             }
         }
     }
+
+    private static String probeReport(Mixer m, Class<? extends DataLine> type, AudioFormat format) {
+        int min = probeMinBufferBytes(m, type, format, AudioFormats.FRAME_BYTES);
+        if (min < 0) return " (chat format not supported)";
+        return String.format(" Min stable buffer: %d bytes (%.1f ms)", min, frameMillis(format, min));
+    }
 }
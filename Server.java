@@ -1,3 +1,4 @@
+import javax.crypto.SecretKey;
 import java.io.*;
 import java.net.*;
 import java.util.*;
@@ -11,12 +12,34 @@ import java.util.concurrent.*;
  * For each received non-empty audio frame:
  *  - Broadcast ACTIVE_SPEAKER:<clientId>\n on control channel
  *  - Forward the binary audio frame to all other audio clients
+ *
+ * Mixing (MCU) mode, enabled when the server is given the room password + salt:
+ *  - Incoming frames are decrypted and queued per client
+ *  - Every frame interval the queued frames are summed, and each listener gets
+ *    one re-encrypted stream with its own voice left out (mix-minus)
+ *  - Silent listeners all hear the same full mix, built and encrypted once per
+ *    step; only active speakers need their own mix-minus, and those are split
+ *    into per-core chunks, so the cost grows with speakers, not room size
+ *  - Each listener has its own bounded output queue drained by a writer thread,
+ *    so a slow listener only loses its own (oldest) frames and never stalls the mix clock
  */
 public class Server {
 
     private final int port;
     private final ExecutorService pool = Executors.newCachedThreadPool();
 
+    // Mixing mode (null roomKey => plain forwarding)
+    private final SecretKey roomKey;
+    private final ScheduledExecutorService mixClock = Executors.newSingleThreadScheduledExecutor();
+    private static final int MIX_THREADS = Runtime.getRuntime().availableProcessors();
+    private final ExecutorService mixPool = Executors.newFixedThreadPool(MIX_THREADS);
+
+    private static final long MIX_INTERVAL_MICROS = AudioFormats.frameMicros();
+    private static final int JITTER_FRAMES = 8;      // max frames buffered per speaker
+    private static final int JITTER_TARGET = 2;      // normal depth per speaker
+    private static final int DRIFT_TICKS = 50;       // ~0.6 s above target counts as clock drift
+    private static final int OUTGOING_FRAMES = 4;    // max mixed frames waiting per listener
+
     // Active audio and control clients
     private final Set<AudioClient> audioClients = ConcurrentHashMap.newKeySet();
     private final Set<ControlClient> controlClients = ConcurrentHashMap.newKeySet();
@@ -25,7 +48,12 @@ public class Server {
     private int clientIdCounter = 1;
 
     public Server(int port) {
+        this(port, null);
+    }
+
+    public Server(int port, SecretKey roomKey) {
         this.port = port;
+        this.roomKey = roomKey;
     }
 
     public void start() throws Exception {
@@ -35,11 +63,17 @@ public class Server {
         System.out.println("Audio server running on port " + port);
         System.out.println("Control server running on port " + (port + 1));
 
+        if (roomKey != null) {
+            mixClock.scheduleAtFixedRate(this::mixTick, MIX_INTERVAL_MICROS, MIX_INTERVAL_MICROS, TimeUnit.MICROSECONDS);
+            System.out.println("Mixing mode enabled (" + MIX_THREADS + " mix threads)");
+        }
+
         // Accept audio connections
         pool.submit(() -> {
             while (true) {
                 try {
                     Socket s = audioServer.accept();
+                    s.setTcpNoDelay(true);
                     int id;
                     synchronized (clientIdLock) {
                         id = clientIdCounter++;
@@ -47,6 +81,7 @@ public class Server {
                     AudioClient ac = new AudioClient(s, id);
                     audioClients.add(ac);
                     pool.submit(ac::handle);
+                    if (roomKey != null) pool.submit(ac::writeLoop);
                 } catch (Exception e) {
                     System.err.println("Audio accept error: " + e.getMessage());
                 }
@@ -114,6 +149,77 @@ public class Server {
         }
     }
 
+    // One mix step: take a frame from every client, send each listener the mix-minus
+    private void mixTick() {
+        try {
+            List<AudioClient> clients = new ArrayList<>(audioClients);
+            byte[][] frames = new byte[clients.size()][];
+            List<Integer> speaking = new ArrayList<>();
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = clients.get(i).nextFrame();
+                if (frames[i] != null) speaking.add(i);
+            }
+            if (speaking.isEmpty()) return;
+
+            int[] sum = AudioMixer.sum(frames);
+            int voices = speaking.size();
+            List<Callable<Void>> tasks = new ArrayList<>();
+
+            // everyone who is not speaking hears the same full mix: build and encrypt it once
+            tasks.add(() -> {
+                byte[] full = encryptFrame(AudioMixer.mixMinus(sum, null, voices));
+                if (full == null) return null;
+                for (int i = 0; i < frames.length; i++) {
+                    if (frames[i] == null) enqueue(clients.get(i), full);
+                }
+                return null;
+            });
+
+            // each speaker gets their own mix-minus (nothing to hear if they're the only one)
+            if (voices > 1) {
+                int chunk = (voices + MIX_THREADS - 1) / MIX_THREADS;
+                for (int from = 0; from < voices; from += chunk) {
+                    List<Integer> part = speaking.subList(from, Math.min(from + chunk, voices));
+                    tasks.add(() -> {
+                        for (int i : part) {
+                            byte[] f = encryptFrame(AudioMixer.mixMinus(sum, frames[i], voices - 1));
+                            if (f != null) enqueue(clients.get(i), f);
+                        }
+                        return null;
+                    });
+                }
+            }
+            // CPU work only (mix + encrypt); waiting keeps each listener's frames in order
+            mixPool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.err.println("Mix error: " + e.getMessage());
+        }
+    }
+
+    // Encrypt one mixed frame into wire format; null (logged) on failure
+    private byte[] encryptFrame(byte[] pcm) {
+        try {
+            byte[] iv = CryptoUtil.generateIV();
+            byte[] cipher = CryptoUtil.encrypt(pcm, roomKey, iv);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(4 + iv.length + cipher.length);
+            FrameUtil.sendFrame(baos, iv, cipher);
+            return baos.toByteArray();
+        } catch (Exception e) {
+            System.err.println("Mix encrypt error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Hand a frame to the listener's writer; never touches the socket
+    private static void enqueue(AudioClient c, byte[] rawFrame) {
+        // slow listener: drop its oldest frame rather than wait for it
+        while (!c.outgoing.offer(rawFrame)) {
+            c.outgoing.poll();
+        }
+    }
+
     // ----- Inner classes -----
 
     private class AudioClient {
@@ -122,6 +228,11 @@ public class Server {
         final InputStream in;
         final OutputStream out;
         final Object lock = new Object();
+        // Decrypted PCM waiting for the next mix step (mixing mode only)
+        final BlockingQueue<byte[]> pending = new ArrayBlockingQueue<>(JITTER_FRAMES);
+        // Encrypted mixed frames waiting for writeLoop (mixing mode only)
+        final BlockingQueue<byte[]> outgoing = new ArrayBlockingQueue<>(OUTGOING_FRAMES);
+        private int ticksOverTarget;   // mix clock thread only
 
         AudioClient(Socket s, int id) throws IOException {
             this.id = id;
@@ -151,6 +262,14 @@ public class Server {
                     byte[] ciphertext = new byte[cipherLen];
                     dis.readFully(ciphertext);
 
+                    if (roomKey != null) {
+                        if (cipherLen > 0) {
+                            broadcastSpeaker(this.id);
+                            queueForMix(iv, ciphertext);
+                        }
+                        continue;
+                    }
+
                     // Build raw frame
                     ByteArrayOutputStream baos = new ByteArrayOutputStream();
                     DataOutputStream dos = new DataOutputStream(baos);
@@ -176,6 +295,50 @@ public class Server {
             }
         }
 
+        // Mixing mode: the only place mixed frames are written, so blocking here affects this listener only
+        void writeLoop() {
+            try {
+                while (!sock.isClosed()) {
+                    byte[] frame = outgoing.poll(100, TimeUnit.MILLISECONDS);
+                    if (frame == null) continue;
+                    synchronized (lock) {
+                        out.write(frame);
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                audioClients.remove(this);
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Next frame for the mix step. Bursts are played out, not dropped; only a queue that
+        // stays above target (client clock running fast) loses one frame per tick.
+        byte[] nextFrame() {
+            if (pending.size() > JITTER_TARGET) {
+                if (++ticksOverTarget >= DRIFT_TICKS) pending.poll();
+            } else {
+                ticksOverTarget = 0;
+            }
+            return pending.poll();
+        }
+
+        void queueForMix(byte[] iv, byte[] ciphertext) {
+            byte[] pcm;
+            try {
+                pcm = CryptoUtil.decrypt(ciphertext, roomKey, iv);
+            } catch (Exception e) {
+                System.err.println("Audio client ID=" + id + " frame dropped (wrong room key?): " + e.getMessage());
+                return;
+            }
+            // drop the oldest frame if the client runs ahead of the mix clock
+            while (!pending.offer(pcm)) {
+                pending.poll();
+            }
+        }
+
         void close() {
             try { sock.close(); } catch (IOException ignored) {}
         }
@@ -200,7 +363,12 @@ public class Server {
     public static void main(String[] args) throws Exception {
         int port = 6000;
         if (args.length >= 1) port = Integer.parseInt(args[0]);
-        Server server = new Server(port);
+        SecretKey roomKey = null;
+        if (args.length >= 3) {
+            // java Server <port> <password> <saltHex> => mixing mode with the room key
+            roomKey = CryptoUtil.deriveKeyFromPassword(args[1].toCharArray(), CryptoUtil.hexToBytes(args[2]));
+        }
+        Server server = new Server(port, roomKey);
         server.start();
     }
 }